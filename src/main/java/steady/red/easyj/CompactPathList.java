@@ -0,0 +1,412 @@
+package steady.red.easyj;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A read-only, sorted list of absolute file paths that keeps its entries in a
+ * parent-index table over a single UTF-8 <code>byte[]</code> arena instead of
+ * one <code>String</code> per file.
+ * <p>
+ * Every directory is stored once as its own name plus the index of its parent
+ * directory, and every file is stored as its name plus the index of its
+ * directory, so the shared parent prefix is never repeated. Paths are decoded
+ * on access, which makes {@link #get(int)} allocate a new <code>String</code>
+ * on each call.
+ * <p>
+ * Entries are sorted by code point (the order of their UTF-8 bytes), so
+ * {@link #binarySearch(String)}, {@link #indexOf(Object)} and {@link #contains(Object)}
+ * run in logarithmic time. This is the natural <code>String</code> order
+ * except for paths containing supplementary characters.
+ */
+public class CompactPathList extends AbstractList<String> implements RandomAccess {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int NO_PARENT = -1;
+
+	private final byte[] arena;
+
+	private final int[] directoryParents;
+	private final int[] directoryNameOffsets;
+	private final int[] directoryNameLengths;
+
+	private final int[] fileDirectories;
+	private final int[] fileNameOffsets;
+	private final int[] fileNameLengths;
+
+	private CompactPathList(Builder builder) {
+		this.arena = Arrays.copyOf(builder.arena, builder.arenaSize);
+
+		this.directoryParents = Arrays.copyOf(builder.directoryParents, builder.directoryCount);
+		this.directoryNameOffsets = Arrays.copyOf(builder.directoryNameOffsets, builder.directoryCount);
+		this.directoryNameLengths = Arrays.copyOf(builder.directoryNameLengths, builder.directoryCount);
+
+		int[] order = sortedOrder(builder);
+
+		this.fileDirectories = permute(builder.fileDirectories, order);
+		this.fileNameOffsets = permute(builder.fileNameOffsets, order);
+		this.fileNameLengths = permute(builder.fileNameLengths, order);
+	}
+
+	@Override
+	public String get(int index) {
+		if (index < 0 || index >= fileDirectories.length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + fileDirectories.length);
+		}
+
+		StringBuilder buffer = new StringBuilder();
+		appendDirectory(buffer, fileDirectories[index]);
+		buffer.append(File.separatorChar);
+		buffer.append(new String(arena, fileNameOffsets[index], fileNameLengths[index], UTF_8));
+
+		return buffer.toString();
+	}
+
+	@Override
+	public int size() {
+		return fileDirectories.length;
+	}
+
+	@Override
+	public int indexOf(Object value) {
+		if (value instanceof String) {
+			int index = binarySearch((String) value);
+
+			return (index >= 0) ? index : -1;
+		}
+
+		return -1;
+	}
+
+	@Override
+	public int lastIndexOf(Object value) {
+		return indexOf(value);
+	}
+
+	@Override
+	public boolean contains(Object value) {
+		return indexOf(value) >= 0;
+	}
+
+	/**
+	 * Searches this list for the given path using the binary search algorithm.
+	 *
+	 * @param path the absolute path to look for
+	 * @return the index of the path if it is contained in the list; otherwise,
+	 *         <code>(-(insertion point) - 1)</code>, as for {@link java.util.Collections#binarySearch(java.util.List, Object)}
+	 */
+	public int binarySearch(String path) {
+		int low = 0;
+		int high = size() - 1;
+
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = compareCodePoints(get(middle), path);
+
+			if (comparison < 0) {
+				low = middle + 1;
+			} else if (comparison > 0) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	/**
+	 * Returns the number of bytes held by the UTF-8 name arena, mostly useful
+	 * to compare against the footprint of the equivalent <code>List&lt;String&gt;</code>.
+	 *
+	 * @return the arena size in bytes
+	 */
+	public int getArenaSize() {
+		return arena.length;
+	}
+
+	/**
+	 * Returns the number of bytes held by the arena and the directory and file
+	 * index tables, leaving out the fixed object and array headers.
+	 *
+	 * @return the estimated size in bytes
+	 */
+	public long getEstimatedSize() {
+		return arena.length + 4L * (directoryParents.length * 3L + fileDirectories.length * 3L);
+	}
+
+	/**
+	 * Compares two strings by code point, which is the order of their UTF-8 encodings.
+	 * It only differs from {@link String#compareTo(String)} for supplementary characters.
+	 */
+	static int compareCodePoints(String left, String right) {
+		int leftIndex = 0;
+		int rightIndex = 0;
+
+		while (leftIndex < left.length() && rightIndex < right.length()) {
+			int leftCodePoint = left.codePointAt(leftIndex);
+			int rightCodePoint = right.codePointAt(rightIndex);
+
+			if (leftCodePoint != rightCodePoint) {
+				return leftCodePoint - rightCodePoint;
+			}
+
+			leftIndex += Character.charCount(leftCodePoint);
+			rightIndex += Character.charCount(rightCodePoint);
+		}
+
+		return (left.length() - leftIndex) - (right.length() - rightIndex);
+	}
+
+	private void appendDirectory(StringBuilder buffer, int directory) {
+		if (directoryParents[directory] != NO_PARENT) {
+			appendDirectory(buffer, directoryParents[directory]);
+			buffer.append(File.separatorChar);
+		}
+
+		buffer.append(new String(arena, directoryNameOffsets[directory], directoryNameLengths[directory], UTF_8));
+	}
+
+	private static int[] sortedOrder(Builder builder) {
+		// full directory prefixes only live while sorting, file names are compared straight from the arena
+		int[] prefixOffsets = new int[builder.directoryCount];
+		int[] prefixLengths = new int[builder.directoryCount];
+		byte[] prefixes = directoryPrefixes(builder, prefixOffsets, prefixLengths);
+
+		int[] order = new int[builder.fileCount];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+
+		mergeSort(order, new int[order.length], 0, order.length, new FileComparator(builder, prefixes, prefixOffsets, prefixLengths));
+
+		return order;
+	}
+
+	private static byte[] directoryPrefixes(Builder builder, int[] offsets, int[] lengths) {
+		int size = 0;
+
+		// a parent is always registered before its children, so its prefix is known first
+		for (int i = 0; i < builder.directoryCount; i++) {
+			int parent = builder.directoryParents[i];
+			lengths[i] = ((parent == NO_PARENT) ? 0 : lengths[parent]) + builder.directoryNameLengths[i] + 1;
+			size += lengths[i];
+		}
+
+		byte[] prefixes = new byte[size];
+		int offset = 0;
+
+		for (int i = 0; i < builder.directoryCount; i++) {
+			int parent = builder.directoryParents[i];
+			int position = offset;
+
+			if (parent != NO_PARENT) {
+				System.arraycopy(prefixes, offsets[parent], prefixes, position, lengths[parent]);
+				position += lengths[parent];
+			}
+
+			System.arraycopy(builder.arena, builder.directoryNameOffsets[i], prefixes, position, builder.directoryNameLengths[i]);
+			position += builder.directoryNameLengths[i];
+			prefixes[position] = (byte) File.separatorChar;
+
+			offsets[i] = offset;
+			offset += lengths[i];
+		}
+
+		return prefixes;
+	}
+
+	private static void mergeSort(int[] order, int[] scratch, int from, int to, FileComparator comparator) {
+		if (to - from < 2) {
+			return;
+		}
+
+		int middle = (from + to) >>> 1;
+		mergeSort(order, scratch, from, middle, comparator);
+		mergeSort(order, scratch, middle, to, comparator);
+
+		if (comparator.compare(order[middle - 1], order[middle]) <= 0) {
+			return;
+		}
+
+		System.arraycopy(order, from, scratch, from, to - from);
+
+		int left = from;
+		int right = middle;
+		for (int i = from; i < to; i++) {
+			if (right >= to || (left < middle && comparator.compare(scratch[left], scratch[right]) <= 0)) {
+				order[i] = scratch[left++];
+			} else {
+				order[i] = scratch[right++];
+			}
+		}
+	}
+
+	private static int[] permute(int[] values, int[] order) {
+		int[] result = new int[order.length];
+
+		for (int i = 0; i < order.length; i++) {
+			result[i] = values[order[i]];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Compares two builder files as unsigned UTF-8 bytes of their directory prefix followed by their name.
+	 */
+	private static class FileComparator {
+
+		private final Builder builder;
+		private final byte[] prefixes;
+		private final int[] prefixOffsets;
+		private final int[] prefixLengths;
+
+		FileComparator(Builder builder, byte[] prefixes, int[] prefixOffsets, int[] prefixLengths) {
+			this.builder = builder;
+			this.prefixes = prefixes;
+			this.prefixOffsets = prefixOffsets;
+			this.prefixLengths = prefixLengths;
+		}
+
+		int compare(int left, int right) {
+			int leftDirectory = builder.fileDirectories[left];
+			int rightDirectory = builder.fileDirectories[right];
+			int leftPrefixLength = prefixLengths[leftDirectory];
+			int rightPrefixLength = prefixLengths[rightDirectory];
+			int leftLength = leftPrefixLength + builder.fileNameLengths[left];
+			int rightLength = rightPrefixLength + builder.fileNameLengths[right];
+
+			// files of one directory share the whole prefix, skip straight to the names
+			int start = (leftDirectory == rightDirectory) ? leftPrefixLength : 0;
+
+			for (int i = start; i < leftLength && i < rightLength; i++) {
+				int leftByte = byteAt(left, leftDirectory, leftPrefixLength, i);
+				int rightByte = byteAt(right, rightDirectory, rightPrefixLength, i);
+
+				if (leftByte != rightByte) {
+					return leftByte - rightByte;
+				}
+			}
+
+			return leftLength - rightLength;
+		}
+
+		private int byteAt(int file, int directory, int prefixLength, int index) {
+			if (index < prefixLength) {
+				return prefixes[prefixOffsets[directory] + index] & 0xff;
+			}
+
+			return builder.arena[builder.fileNameOffsets[file] + index - prefixLength] & 0xff;
+		}
+	}
+
+	/**
+	 * Collects files one at a time and produces an immutable {@link CompactPathList}.
+	 * A builder is not thread safe and is meant to be fed straight from a traversal.
+	 */
+	public static class Builder {
+
+		private final Map<String, Integer> directoryIndexes = new HashMap<String, Integer>();
+
+		private byte[] arena = new byte[4096];
+		private int arenaSize;
+
+		private int[] directoryParents = new int[64];
+		private int[] directoryNameOffsets = new int[64];
+		private int[] directoryNameLengths = new int[64];
+		private int directoryCount;
+
+		private int[] fileDirectories = new int[256];
+		private int[] fileNameOffsets = new int[256];
+		private int[] fileNameLengths = new int[256];
+		private int fileCount;
+
+		public Builder add(File file) {
+			File absoluteFile = file.getAbsoluteFile();
+			File parent = absoluteFile.getParentFile();
+
+			if (parent == null) {
+				throw new IllegalArgumentException("File has no parent directory: \"" + absoluteFile.getPath() + "\"");
+			}
+
+			int directory = directoryIndex(parent);
+
+			if (fileCount == fileDirectories.length) {
+				int capacity = grow(fileCount);
+				fileDirectories = Arrays.copyOf(fileDirectories, capacity);
+				fileNameOffsets = Arrays.copyOf(fileNameOffsets, capacity);
+				fileNameLengths = Arrays.copyOf(fileNameLengths, capacity);
+			}
+
+			fileDirectories[fileCount] = directory;
+			fileNameOffsets[fileCount] = arenaSize;
+			fileNameLengths[fileCount] = store(absoluteFile.getName());
+			fileCount++;
+
+			return this;
+		}
+
+		public CompactPathList build() {
+			return new CompactPathList(this);
+		}
+
+		private int directoryIndex(File directory) {
+			String path = directory.getPath();
+			Integer index = directoryIndexes.get(path);
+
+			if (index != null) {
+				return index;
+			}
+
+			File parent = directory.getParentFile();
+			int parentIndex = NO_PARENT;
+			String name = path;
+
+			if (parent != null) {
+				parentIndex = directoryIndex(parent);
+				name = directory.getName();
+			} else if (path.length() > 0 && path.charAt(path.length() - 1) == File.separatorChar) {
+				// file system roots keep their trailing separator, which get() adds back on its own
+				name = path.substring(0, path.length() - 1);
+			}
+
+			if (directoryCount == directoryParents.length) {
+				int capacity = grow(directoryCount);
+				directoryParents = Arrays.copyOf(directoryParents, capacity);
+				directoryNameOffsets = Arrays.copyOf(directoryNameOffsets, capacity);
+				directoryNameLengths = Arrays.copyOf(directoryNameLengths, capacity);
+			}
+
+			directoryParents[directoryCount] = parentIndex;
+			directoryNameOffsets[directoryCount] = arenaSize;
+			directoryNameLengths[directoryCount] = store(name);
+			directoryIndexes.put(path, directoryCount);
+
+			return directoryCount++;
+		}
+
+		private int store(String name) {
+			byte[] bytes = name.getBytes(UTF_8);
+
+			if (arenaSize + bytes.length > arena.length) {
+				arena = Arrays.copyOf(arena, Math.max(grow(arena.length), arenaSize + bytes.length));
+			}
+
+			System.arraycopy(bytes, 0, arena, arenaSize, bytes.length);
+			arenaSize += bytes.length;
+
+			return bytes.length;
+		}
+
+		private static int grow(int capacity) {
+			return capacity + (capacity >> 1) + 1;
+		}
+	}
+}
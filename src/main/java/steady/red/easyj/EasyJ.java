@@ -1,7 +1,15 @@
 package steady.red.easyj;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.AbstractCollection;
@@ -10,10 +18,21 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Throwables;
 import com.google.common.collect.TreeTraverser;
 import com.google.common.io.Files;
 
@@ -57,10 +76,111 @@ public class EasyJ {
 		return "\"" + value + "\"";
 	}
 
+	public static String read(final File file) {
+		return read(file, EasyJContext.getDefault());
+	}
+
+	public static String read(final File file, final EasyJContext context) {
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8)) {
+			StringBuilder result = new StringBuilder();
+			char[] buffer = new char[context.getBufferSize()];
+
+			for (int count = reader.read(buffer); count != -1; count = reader.read(buffer)) {
+				result.append(buffer, 0, count);
+			}
+
+			return result.toString();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static void write(final File file, final CharSequence value) {
+		write(file, value, EasyJContext.getDefault());
+	}
+
+	public static void write(final File file, final CharSequence value, final EasyJContext context) {
+		write(file, value, false, context);
+	}
+
+	public static void append(final File file, final CharSequence value) {
+		append(file, value, EasyJContext.getDefault());
+	}
+
+	public static void append(final File file, final CharSequence value, final EasyJContext context) {
+		write(file, value, true, context);
+	}
+
+	private static void write(final File file, final CharSequence value, final boolean append, final EasyJContext context) {
+		try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), Charsets.UTF_8), context.getBufferSize())) {
+			writer.append(value);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static List<String> findRegex(final CharSequence input, final String regex) {
+		return findRegex(input, regex, EasyJContext.getDefault());
+	}
+
+	/**
+	 * Returns every match of the regular expression in the input, compiling the
+	 * expression through the context's pattern cache.
+	 */
+	public static List<String> findRegex(final CharSequence input, final String regex, final EasyJContext context) {
+		List<String> resultList = new ArrayList<String>();
+		Matcher matcher = context.compilePattern(regex).matcher(input);
+
+		while (matcher.find()) {
+			resultList.add(matcher.group());
+		}
+
+		return resultList;
+	}
+
+	/**
+	 * Same listing as {@link #getFilePathesListing(File, String[])}, but the pathes are kept in a
+	 * {@link CompactPathList} which shares parent directories instead of repeating them in every entry.
+	 * The result is sorted, read-only and decodes each path on access.
+	 */
+	public static CompactPathList getCompactFilePathesListing(final File rootDirectory, final String[] extensions) {
+		CompactPathList.Builder builder = new CompactPathList.Builder();
+
+		if (rootDirectory.exists() == true) {
+			for (File file : createFileTraverser(createExtensionsFilter(extensions)).preOrderTraversal(rootDirectory)) {
+				if (file.isDirectory() == false) {
+					builder.add(file);
+				}
+			}
+		}
+
+		return builder.build();
+	}
+
 	public static List<File> getFilesListing(final File rootDirectory, final String[] extensions) {
 		List<File> resultList = new ArrayList<File>();
 
-		final FileFilter fileFilter = new FileFilter() {
+		for (File file : createFileTraverser(createExtensionsFilter(extensions)).preOrderTraversal(rootDirectory)) {
+			if (file.isDirectory() == false) {
+				resultList.add(file);
+			}
+		}
+
+		return resultList;
+	}
+
+	/**
+	 * Same listing as {@link #getFilesListing(File, String[])}, answered from a {@link ListingSnapshot}
+	 * which is first brought up to date by listing only the directories that changed since it was taken.
+	 */
+	public static List<File> getFilesListing(final File rootDirectory, final String[] extensions, final ListingSnapshot snapshot) {
+		snapshot.refresh(rootDirectory);
+
+		return snapshot.getFilesListing(rootDirectory, extensions);
+	}
+
+	public static FileFilter createExtensionsFilter(final String[] extensions) {
+		return new FileFilter() {
 			final Set<String> extensionsSet = new HashSet<String>(Arrays.asList(extensions));
 
 			@Override
@@ -74,28 +194,120 @@ public class EasyJ {
 				return extensionsSet.contains(fileExtension);
 			}
 		};
+	}
 
-		for (File file : createFileTraverser(fileFilter).preOrderTraversal(rootDirectory)) {
-			if (file.isDirectory() == false) {
-				resultList.add(file);
+	public static void checkDirectory(File directory, String directoryType) {
+		if (directory.isDirectory() == false) {
+			directory.mkdirs();
+
+			if (directory.isDirectory() == false) {
+				throw createDirectoryException(directory, directoryType);
 			}
 		}
+	}
 
-		return resultList;
+	public static void checkDirectories(Collection<File> directories, String directoryType) {
+		checkDirectories(directories, directoryType, EasyJContext.getDefault());
 	}
 
-	public static void checkDirectory(File directory, String directoryType) {
-		if (directory.exists() == false) {
-			directory.mkdirs();
+	/**
+	 * Batch version of {@link #checkDirectory(File, String)} for creating many directories at once.
+	 * <p>
+	 * The directories are first collapsed to the deepest ones, since creating those creates their
+	 * ancestors as well, and are then created on <code>workers.threads</code> threads sharing a cache
+	 * of the directories already known to exist, so every common ancestor is checked only once.
+	 * Every directory that could not be created, or that exists as a file, is reported in the thrown exception.
+	 */
+	public static void checkDirectories(Collection<File> directories, final String directoryType, EasyJContext context) {
+		Set<File> deepestDirectories = new HashSet<File>();
+		Set<File> ancestors = new HashSet<File>();
+
+		for (File directory : directories) {
+			// normalized so that out/./a and out/b/../a collapse against out/a
+			File absoluteDirectory = directory.getAbsoluteFile().toPath().normalize().toFile();
+
+			if (deepestDirectories.add(absoluteDirectory)) {
+				// ancestors above the first one already marked were marked along with it
+				File parent = absoluteDirectory.getParentFile();
+				while (parent != null && ancestors.add(parent)) {
+					parent = parent.getParentFile();
+				}
+			}
+		}
+
+		deepestDirectories.removeAll(ancestors);
+
+		if (deepestDirectories.isEmpty()) {
+			return;
+		}
+
+		final Set<File> knownDirectories = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+		final Set<String> failures = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (final File directory : deepestDirectories) {
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					try {
+						createDirectory(directory, directoryType, knownDirectories);
+					} catch (RuntimeException e) {
+						failures.add(e.getMessage());
+					}
+					return null;
+				}
+			});
 		}
 
-		if (directory.exists() == false) {
-			throw new RuntimeException("Could not create " + directoryType + " directory: \"" + directory.getAbsolutePath() + "\"");
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(context.getWorkerThreads(), tasks.size()));
+		try {
+			// tasks report their own RuntimeExceptions, anything else is only kept in the futures
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw Throwables.propagate(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} finally {
+			executor.shutdown();
 		}
 
-		if (directory.exists() == false) {
-			throw new RuntimeException("Designated " + directoryType + " directory is not a directory: \"" + directory.getAbsolutePath() + "\"");
-		}                            
+		if (failures.isEmpty() == false) {
+			throw new RuntimeException(Joiner.on(System.getProperty("line.separator")).join(failures));
+		}
+	}
+
+	/**
+	 * Creates the directory one level at a time, starting from the deepest ancestor known to exist.
+	 */
+	private static void createDirectory(File directory, String directoryType, Set<File> knownDirectories) {
+		if (knownDirectories.contains(directory) == true) {
+			return;
+		}
+
+		if (directory.isDirectory() == false) {
+			File parent = directory.getParentFile();
+			if (parent != null) {
+				createDirectory(parent, directoryType, knownDirectories);
+			}
+
+			// mkdir() also fails when another thread got there first, so only isDirectory() tells
+			if (directory.mkdir() == false && directory.isDirectory() == false) {
+				throw createDirectoryException(directory, directoryType);
+			}
+		}
+
+		knownDirectories.add(directory);
+	}
+
+	private static RuntimeException createDirectoryException(File directory, String directoryType) {
+		if (directory.exists() == true) {
+			return new RuntimeException("Designated " + directoryType + " directory is not a directory: \"" + directory.getAbsolutePath() + "\"");
+		}
+
+		return new RuntimeException("Could not create " + directoryType + " directory: \"" + directory.getAbsolutePath() + "\"");
 	}
 
 	public static TreeTraverser<File> createFileTraverser(final FileFilter fileFilter) {
@@ -125,7 +337,19 @@ public class EasyJ {
 	 * @since 1.0
 	 */
 	public static String toMapString(Map self) {
-		return toMapString(self, -1);
+		return toMapString(self, EasyJContext.getDefault());
+	}
+
+	/**
+	 * Returns the string representation of this map, cut after the context's
+	 * <code>format.max-size</code> characters.
+	 *
+	 * @param self a Map
+	 * @param context the settings to use
+	 * @return the string representation
+	 */
+	public static String toMapString(Map self, EasyJContext context) {
+		return toMapString(self, context.getFormatMaxSize());
 	}
 
 	/**
@@ -165,7 +389,19 @@ public class EasyJ {
 	 * @since 1.0
 	 */
 	public static String toListString(Collection self) {
-		return toListString(self, -1);
+		return toListString(self, EasyJContext.getDefault());
+	}
+
+	/**
+	 * Returns the string representation of the given list, cut after the context's
+	 * <code>format.max-size</code> characters.
+	 *
+	 * @param self a Collection
+	 * @param context the settings to use
+	 * @return the string representation
+	 */
+	public static String toListString(Collection self, EasyJContext context) {
+		return toListString(self, context.getFormatMaxSize());
 	}
 
 	/**
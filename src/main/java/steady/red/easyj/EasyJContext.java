@@ -0,0 +1,126 @@
+package steady.red.easyj;
+
+import java.util.regex.Pattern;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Performance settings for the EasyJ entry points, read from the <code>easyj</code>
+ * section of a Typesafe {@link Config}.
+ * <p>
+ * The static methods of {@link EasyJ} use {@link #getDefault()}, which is loaded
+ * once from <code>application.conf</code> with <code>reference.conf</code> as fallback.
+ * Their overloads taking a context let different workloads in one JVM run with
+ * different settings, e.g.
+ * <code>new EasyJContext(ConfigFactory.parseString("easyj.io.buffer-size = 65536"))</code>.
+ * A context also owns the compiled pattern cache used by {@link EasyJ#findRegex(CharSequence, String, EasyJContext)},
+ * so it is meant to be created once per workload and shared, it is thread safe.
+ */
+public class EasyJContext {
+
+	private static final String ROOT_PATH = "easyj";
+
+	private static volatile EasyJContext defaultContext;
+
+	private final int workerThreads;
+	private final int bufferSize;
+	private final int regexCacheSize;
+	private final int formatMaxSize;
+	private final int snapshotBatchSize;
+
+	private final LoadingCache<String, Pattern> patternCache;
+
+	/**
+	 * @param config the settings to use, missing values fall back to <code>reference.conf</code>
+	 */
+	public EasyJContext(Config config) {
+		Config settings = config.withFallback(ConfigFactory.defaultReference()).resolve().getConfig(ROOT_PATH);
+
+		this.workerThreads = getPositiveInt(settings, "workers.threads");
+		this.bufferSize = getPositiveInt(settings, "io.buffer-size");
+		this.regexCacheSize = getPositiveInt(settings, "regex.cache-size");
+		this.formatMaxSize = settings.getInt("format.max-size");
+		this.snapshotBatchSize = getPositiveInt(settings, "snapshot.batch-size");
+
+		this.patternCache = CacheBuilder.newBuilder()
+				.maximumSize(regexCacheSize)
+				.build(new CacheLoader<String, Pattern>() {
+					@Override
+					public Pattern load(String regex) {
+						return Pattern.compile(regex);
+					}
+				});
+	}
+
+	/**
+	 * @return the context loaded from <code>application.conf</code> and <code>reference.conf</code>
+	 */
+	public static EasyJContext getDefault() {
+		EasyJContext context = defaultContext;
+
+		if (context == null) {
+			synchronized (EasyJContext.class) {
+				context = defaultContext;
+				if (context == null) {
+					context = new EasyJContext(ConfigFactory.load());
+					defaultContext = context;
+				}
+			}
+		}
+
+		return context;
+	}
+
+	public int getWorkerThreads() {
+		return workerThreads;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public int getRegexCacheSize() {
+		return regexCacheSize;
+	}
+
+	public int getFormatMaxSize() {
+		return formatMaxSize;
+	}
+
+	public int getSnapshotBatchSize() {
+		return snapshotBatchSize;
+	}
+
+	/**
+	 * Returns the compiled form of the given regular expression, compiling it only
+	 * when it is not in this context's cache yet.
+	 *
+	 * @param regex the regular expression
+	 * @return the compiled pattern
+	 */
+	public Pattern compilePattern(String regex) {
+		try {
+			return patternCache.getUnchecked(regex);
+		} catch (UncheckedExecutionException e) {
+			// surface PatternSyntaxException as Pattern.compile() would
+			throw Throwables.propagate(e.getCause());
+		}
+	}
+
+	private static int getPositiveInt(Config settings, String path) {
+		int value = settings.getInt(path);
+
+		if (value <= 0) {
+			throw new ConfigException.BadValue(settings.origin(), ROOT_PATH + "." + path, "must be positive, got " + value);
+		}
+
+		return value;
+	}
+}
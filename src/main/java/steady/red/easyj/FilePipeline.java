@@ -0,0 +1,352 @@
+package steady.red.easyj;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import rx.Observable;
+import rx.Producer;
+import rx.Scheduler;
+import rx.Subscriber;
+import rx.functions.Action0;
+import rx.functions.Action1;
+import rx.functions.Action2;
+import rx.functions.Func1;
+import rx.schedulers.Schedulers;
+
+/**
+ * A file processing pipeline built on RxJava: a directory walk feeding a chain of
+ * bounded parallel stages, e.g.
+ * <pre>
+ * List&lt;Throwable&gt; failures = FilePipeline.walk(rootDirectory, new String[]{"java"})
+ *         .stage(readFunction)
+ *         .stage(matchFunction)
+ *         .run(writeAction);
+ * </pre>
+ * <p>
+ * The walk is lazy: files are only listed as the first stage asks for them, so the
+ * listing I/O overlaps with the work of later stages instead of running before it.
+ * Every stage runs at most <code>maxConcurrent</code> items at a time and buffers at
+ * most as many results, then stops requesting from upstream until downstream catches
+ * up, which bounds memory whatever the size of the tree.
+ * <p>
+ * A stage function returning <code>null</code> drops the item. A stage function
+ * throwing only drops its own item: the failure is handed to the error handler and
+ * the rest of the pipeline keeps running.
+ *
+ * @param <T> the type of the items emitted by the last stage
+ */
+public class FilePipeline<T> {
+
+	private final EasyJContext context;
+	private final Assembly<T> assembly;
+
+	private FilePipeline(EasyJContext context, Assembly<T> assembly) {
+		this.context = context;
+		this.assembly = assembly;
+	}
+
+	public static FilePipeline<File> walk(final File rootDirectory, final String[] extensions) {
+		return walk(rootDirectory, extensions, EasyJContext.getDefault());
+	}
+
+	/**
+	 * Starts a pipeline with the same files as {@link EasyJ#getFilesListing(File, String[])},
+	 * listed lazily. Stages added without an explicit limit run <code>workers.threads</code>
+	 * items at a time.
+	 */
+	public static FilePipeline<File> walk(final File rootDirectory, final String[] extensions, final EasyJContext context) {
+		return new FilePipeline<File>(context, new Assembly<File>() {
+			@Override
+			public Observable<File> assemble(Action2<Object, Throwable> errorHandler) {
+				if (rootDirectory.exists() == false) {
+					return Observable.empty();
+				}
+
+				Iterable<File> files = EasyJ.createFileTraverser(EasyJ.createExtensionsFilter(extensions)).preOrderTraversal(rootDirectory);
+
+				return Observable.from(files).filter(new Func1<File, Boolean>() {
+					@Override
+					public Boolean call(File file) {
+						return file.isDirectory() == false;
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Keeps the items matching the predicate, evaluated inline without a stage of its own.
+	 */
+	public FilePipeline<T> filter(final Func1<? super T, Boolean> predicate) {
+		final Assembly<T> previous = assembly;
+
+		return new FilePipeline<T>(context, new Assembly<T>() {
+			@Override
+			public Observable<T> assemble(Action2<Object, Throwable> errorHandler) {
+				return previous.assemble(errorHandler).filter(predicate);
+			}
+		});
+	}
+
+	public <R> FilePipeline<R> stage(final Func1<? super T, ? extends R> function) {
+		return stage(context.getWorkerThreads(), function);
+	}
+
+	/**
+	 * Adds a stage running the function on at most <code>maxConcurrent</code> items at a time.
+	 */
+	public <R> FilePipeline<R> stage(final int maxConcurrent, final Func1<? super T, ? extends R> function) {
+		if (maxConcurrent <= 0) {
+			throw new IllegalArgumentException("Stage concurrency must be positive: " + maxConcurrent);
+		}
+
+		final Assembly<T> previous = assembly;
+
+		return new FilePipeline<R>(context, new Assembly<R>() {
+			@Override
+			public Observable<R> assemble(Action2<Object, Throwable> errorHandler) {
+				return previous.assemble(errorHandler).lift(new BoundedStage<T, R>(maxConcurrent, function, Schedulers.io(), errorHandler));
+			}
+		});
+	}
+
+	/**
+	 * Assembles the pipeline without running it, for further composition with RxJava operators.
+	 *
+	 * @param errorHandler receives every item a stage failed on, together with the failure
+	 */
+	public Observable<T> toObservable(Action2<Object, Throwable> errorHandler) {
+		return assembly.assemble(errorHandler);
+	}
+
+	public List<Throwable> run() {
+		return run(new Action1<T>() {
+			@Override
+			public void call(T item) {
+				// results are not needed, the stages did the work
+			}
+		});
+	}
+
+	/**
+	 * Runs the pipeline to completion, handing every result to the sink one at a time.
+	 *
+	 * @param sink receives the results of the last stage, never concurrently
+	 * @return the failures of the individual items, empty if every item went through
+	 */
+	public List<Throwable> run(Action1<? super T> sink) {
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+
+		toObservable(new Action2<Object, Throwable>() {
+			@Override
+			public void call(Object item, Throwable failure) {
+				failures.add(new RuntimeException("Pipeline stage failed on: " + item, failure));
+			}
+		}).toBlocking().forEach(sink);
+
+		return failures;
+	}
+
+	private interface Assembly<T> {
+		Observable<T> assemble(Action2<Object, Throwable> errorHandler);
+	}
+
+	/**
+	 * Runs a function on a scheduler for at most <code>maxConcurrent</code> items at a
+	 * time. Items in flight plus results waiting for downstream demand never exceed
+	 * <code>maxConcurrent</code>; upstream is only asked for more as that room frees up.
+	 */
+	private static class BoundedStage<T, R> implements Observable.Operator<R, T> {
+
+		private final int maxConcurrent;
+		private final Func1<? super T, ? extends R> function;
+		private final Scheduler scheduler;
+		private final Action2<Object, Throwable> errorHandler;
+
+		BoundedStage(int maxConcurrent, Func1<? super T, ? extends R> function, Scheduler scheduler, Action2<Object, Throwable> errorHandler) {
+			this.maxConcurrent = maxConcurrent;
+			this.function = function;
+			this.scheduler = scheduler;
+			this.errorHandler = errorHandler;
+		}
+
+		@Override
+		public Subscriber<? super T> call(final Subscriber<? super R> child) {
+			final StageSubscriber<T, R> parent = new StageSubscriber<T, R>(this, child);
+
+			child.add(parent);
+			child.setProducer(new Producer() {
+				@Override
+				public void request(long n) {
+					parent.requestDownstream(n);
+				}
+			});
+
+			return parent;
+		}
+	}
+
+	private static class StageSubscriber<T, R> extends Subscriber<T> {
+
+		private final BoundedStage<T, R> stage;
+		private final Subscriber<? super R> child;
+
+		// all fields below are guarded by this
+		private final Queue<R> results = new ArrayDeque<R>();
+		private long downstreamRequested;
+		private int upstreamRequested;
+		private int inFlight;
+		private boolean upstreamDone;
+		private Throwable upstreamError;
+		private boolean terminated;
+		private boolean emitting;
+		private boolean missed;
+
+		StageSubscriber(BoundedStage<T, R> stage, Subscriber<? super R> child) {
+			this.stage = stage;
+			this.child = child;
+		}
+
+		@Override
+		public void onStart() {
+			// hand out the first credits, or keep the ones downstream demand already handed out
+			drain();
+		}
+
+		@Override
+		public void onNext(final T item) {
+			synchronized (this) {
+				upstreamRequested--;
+				inFlight++;
+			}
+
+			final Scheduler.Worker worker = stage.scheduler.createWorker();
+			worker.schedule(new Action0() {
+				@Override
+				public void call() {
+					try {
+						R result = stage.function.call(item);
+
+						synchronized (StageSubscriber.this) {
+							if (result != null) {
+								results.add(result);
+							}
+						}
+					} catch (Throwable failure) {
+						stage.errorHandler.call(item, failure);
+					} finally {
+						synchronized (StageSubscriber.this) {
+							inFlight--;
+						}
+						worker.unsubscribe();
+						drain();
+					}
+				}
+			});
+		}
+
+		@Override
+		public void onCompleted() {
+			synchronized (this) {
+				upstreamDone = true;
+			}
+			drain();
+		}
+
+		@Override
+		public void onError(Throwable e) {
+			synchronized (this) {
+				upstreamDone = true;
+				upstreamError = e;
+			}
+			drain();
+		}
+
+		void requestDownstream(long n) {
+			if (n <= 0) {
+				return;
+			}
+
+			synchronized (this) {
+				downstreamRequested += n;
+				if (downstreamRequested < 0) {
+					downstreamRequested = Long.MAX_VALUE;
+				}
+			}
+			drain();
+		}
+
+		/**
+		 * Emits what downstream asked for and tops up upstream requests, never calling
+		 * out while holding the lock and never from two threads at once.
+		 */
+		private void drain() {
+			synchronized (this) {
+				if (emitting) {
+					missed = true;
+					return;
+				}
+				emitting = true;
+			}
+
+			for (;;) {
+				for (;;) {
+					R result;
+
+					synchronized (this) {
+						if (terminated || downstreamRequested == 0 || results.isEmpty()) {
+							break;
+						}
+						result = results.poll();
+						if (downstreamRequested != Long.MAX_VALUE) {
+							downstreamRequested--;
+						}
+					}
+
+					child.onNext(result);
+				}
+
+				Throwable error = null;
+				boolean complete = false;
+				int credit = 0;
+
+				synchronized (this) {
+					if (terminated == false) {
+						if (upstreamError != null) {
+							error = upstreamError;
+							terminated = true;
+						} else if (upstreamDone && inFlight == 0 && results.isEmpty()) {
+							complete = true;
+							terminated = true;
+						} else if (upstreamDone == false) {
+							credit = stage.maxConcurrent - inFlight - results.size() - upstreamRequested;
+							if (credit > 0) {
+								upstreamRequested += credit;
+							}
+						}
+					}
+				}
+
+				if (error != null) {
+					child.onError(error);
+				} else if (complete) {
+					child.onCompleted();
+				} else if (credit > 0) {
+					request(credit);
+				}
+
+				synchronized (this) {
+					if (missed == false) {
+						emitting = false;
+						return;
+					}
+					missed = false;
+				}
+			}
+		}
+	}
+}
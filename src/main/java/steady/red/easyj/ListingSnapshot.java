@@ -0,0 +1,487 @@
+package steady.red.easyj;
+
+import java.io.Closeable;
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.io.Files;
+
+/**
+ * A file listing persisted in a relational database, so that a new process can
+ * pick up the previous listing instead of rescanning whole trees.
+ * <p>
+ * Every directory is stored with its last modification time and every file with
+ * its size, last modification time and extension. {@link #refresh(File)} only
+ * lists directories whose modification time changed since the snapshot was taken;
+ * unchanged directories are trusted as stored. Note that editing a file in place
+ * does not touch its directory, so size and modification time of such a file stay
+ * as they were when its directory was last listed.
+ * <p>
+ * A directory modified within {@link #MODIFICATION_GRANULARITY} of being listed is
+ * stored as unsettled and listed again by the next refresh: on file systems and JDKs
+ * with coarse modification times, a change made right after the listing may not move
+ * the directory's modification time at all.
+ * <p>
+ * The H2 driver shipped at runtime scope is used through {@link #openH2(File)},
+ * any other JDBC connection can be handed to the constructor.
+ */
+public class ListingSnapshot implements Closeable {
+
+	private static final String H2_DRIVER = "org.h2.Driver";
+
+	/**
+	 * Coarsest modification time resolution expected, in milliseconds: whole seconds on
+	 * JDK 7/8 for Linux and on HFS+, two seconds on FAT.
+	 */
+	public static final long MODIFICATION_GRANULARITY = 2000;
+
+	/**
+	 * Stored instead of the modification time of a directory that must be listed again,
+	 * it never matches {@link File#lastModified()}.
+	 */
+	private static final long UNSETTLED_MODIFICATION = -1;
+
+	private final Connection connection;
+
+	private final int batchSize;
+
+	// statements are batched and flushed together, deletes first
+	private int pendingStatements;
+	private PreparedStatement deleteFilesStatement;
+	private PreparedStatement deleteDirectoryStatement;
+	private PreparedStatement insertDirectoryStatement;
+	private PreparedStatement insertFileStatement;
+
+	public ListingSnapshot(Connection connection) {
+		this(connection, EasyJContext.getDefault());
+	}
+
+	public ListingSnapshot(Connection connection, EasyJContext context) {
+		this.connection = connection;
+		this.batchSize = context.getSnapshotBatchSize();
+
+		try {
+			connection.setAutoCommit(false);
+			createTables();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Opens (or creates) an embedded H2 snapshot database stored next to the given file name.
+	 *
+	 * @param databaseFile the database file name, without the H2 specific suffix
+	 * @return the opened snapshot
+	 */
+	public static ListingSnapshot openH2(File databaseFile) {
+		return openH2(databaseFile, EasyJContext.getDefault());
+	}
+
+	public static ListingSnapshot openH2(File databaseFile, EasyJContext context) {
+		return openH2("jdbc:h2:" + databaseFile.getAbsolutePath(), context);
+	}
+
+	public static ListingSnapshot openH2(String jdbcUrl) {
+		return openH2(jdbcUrl, EasyJContext.getDefault());
+	}
+
+	public static ListingSnapshot openH2(String jdbcUrl, EasyJContext context) {
+		try {
+			Class.forName(H2_DRIVER);
+
+			return new ListingSnapshot(DriverManager.getConnection(jdbcUrl, "sa", ""), context);
+		} catch (ClassNotFoundException e) {
+			throw new RuntimeException("H2 driver is not available on the classpath: " + H2_DRIVER, e);
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Replaces the whole snapshot with a full scan of the given directory.
+	 *
+	 * @param rootDirectory the directory to scan
+	 * @return the number of files stored
+	 */
+	public int save(File rootDirectory) {
+		try {
+			try (Statement statement = connection.createStatement()) {
+				statement.executeUpdate("DELETE FROM SNAPSHOT_FILE");
+				statement.executeUpdate("DELETE FROM SNAPSHOT_DIRECTORY");
+			}
+
+			int fileCount = 0;
+
+			if (rootDirectory.isDirectory() == true) {
+				Deque<File> directories = new ArrayDeque<File>();
+				directories.push(rootDirectory.getAbsoluteFile());
+
+				while (directories.isEmpty() == false) {
+					File directory = directories.pop();
+
+					fileCount += scanDirectory(directory, directories);
+				}
+			}
+
+			flush();
+			connection.commit();
+
+			return fileCount;
+		} catch (SQLException e) {
+			rollback();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Brings the snapshot up to date with the given directory, listing only the
+	 * directories that are new or whose modification time changed.
+	 *
+	 * @param rootDirectory the directory the snapshot was taken from
+	 * @return the number of directories that had to be listed again
+	 */
+	public int refresh(File rootDirectory) {
+		try {
+			Map<String, Long> storedModifications = new HashMap<String, Long>();
+			Map<String, List<String>> storedChildren = new HashMap<String, List<String>>();
+			loadDirectories(storedModifications, storedChildren);
+
+			File root = rootDirectory.getAbsoluteFile();
+			int rescanCount = 0;
+
+			if (root.isDirectory() == false) {
+				deleteDirectory(root.getPath(), storedChildren);
+			} else {
+				Deque<File> directories = new ArrayDeque<File>();
+				directories.push(root);
+
+				while (directories.isEmpty() == false) {
+					File directory = directories.pop();
+					String path = directory.getPath();
+					Long storedModification = storedModifications.get(path);
+
+					if (directory.isDirectory() == false) {
+						// gone without its parent's mtime moving, e.g. with coarse mtimes
+						deleteDirectory(path, storedChildren);
+						continue;
+					}
+
+					if (storedModification != null && storedModification.longValue() == directory.lastModified()) {
+						List<String> children = storedChildren.get(path);
+						if (children != null) {
+							for (String child : children) {
+								directories.push(new File(child));
+							}
+						}
+						continue;
+					}
+
+					List<String> children = storedChildren.get(path);
+					if (children != null) {
+						// the stored children are reconciled against the fresh listing below
+						for (String child : children) {
+							if (new File(child).isDirectory() == false) {
+								deleteDirectory(child, storedChildren);
+							}
+						}
+					}
+
+					deleteDirectoryEntry(path);
+					scanDirectory(directory, directories);
+					rescanCount++;
+				}
+			}
+
+			flush();
+			connection.commit();
+
+			return rescanCount;
+		} catch (SQLException e) {
+			rollback();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return all files of the snapshot, ordered by path
+	 */
+	public List<File> getFilesListing() {
+		return queryFiles("SELECT PATH FROM SNAPSHOT_FILE ORDER BY PATH");
+	}
+
+	/**
+	 * Same filter as {@link EasyJ#getFilesListing(File, String[])}, answered from the extension index.
+	 *
+	 * @param extensions the file extensions to keep, without the leading dot
+	 * @return the matching files, ordered by path
+	 */
+	public List<File> getFilesListing(String[] extensions) {
+		if (extensions.length == 0) {
+			return new ArrayList<File>();
+		}
+
+		StringBuilder sql = new StringBuilder("SELECT PATH FROM SNAPSHOT_FILE WHERE EXTENSION IN (");
+		appendParameters(sql, extensions.length);
+		sql.append(") ORDER BY PATH");
+
+		return queryFiles(sql.toString(), (Object[]) extensions);
+	}
+
+	/**
+	 * Same as {@link #getFilesListing(String[])}, limited to the files below the given
+	 * directory, for snapshots that hold more than one tree.
+	 *
+	 * @param rootDirectory the directory the files must be in, directly or not
+	 * @param extensions the file extensions to keep, without the leading dot
+	 * @return the matching files, ordered by path
+	 */
+	public List<File> getFilesListing(File rootDirectory, String[] extensions) {
+		if (extensions.length == 0) {
+			return new ArrayList<File>();
+		}
+
+		StringBuilder sql = new StringBuilder("SELECT PATH FROM SNAPSHOT_FILE WHERE PATH LIKE ? ESCAPE '\\' AND EXTENSION IN (");
+		appendParameters(sql, extensions.length);
+		sql.append(") ORDER BY PATH");
+
+		Object[] parameters = new Object[extensions.length + 1];
+		String rootPath = rootDirectory.getAbsolutePath();
+		if (rootPath.endsWith(File.separator) == false) {
+			// file system roots such as / or C:\ already end with one
+			rootPath += File.separator;
+		}
+
+		parameters[0] = escapeLike(rootPath) + "%";
+		System.arraycopy(extensions, 0, parameters, 1, extensions.length);
+
+		return queryFiles(sql.toString(), parameters);
+	}
+
+	/**
+	 * @param minimumSize the smallest file size to keep, inclusive
+	 * @param maximumSize the largest file size to keep, inclusive
+	 * @return the files within the size range, ordered by path
+	 */
+	public List<File> getFilesBySize(long minimumSize, long maximumSize) {
+		return queryFiles("SELECT PATH FROM SNAPSHOT_FILE WHERE FILE_SIZE BETWEEN ? AND ? ORDER BY PATH", minimumSize, maximumSize);
+	}
+
+	@Override
+	public void close() {
+		try {
+			for (PreparedStatement statement : batchedStatements()) {
+				if (statement != null) {
+					statement.close();
+				}
+			}
+			connection.close();
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void createTables() throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("CREATE TABLE IF NOT EXISTS SNAPSHOT_DIRECTORY(PATH VARCHAR PRIMARY KEY, PARENT VARCHAR, LAST_MODIFIED BIGINT)");
+			statement.executeUpdate("CREATE TABLE IF NOT EXISTS SNAPSHOT_FILE(PATH VARCHAR PRIMARY KEY, DIRECTORY VARCHAR, FILE_SIZE BIGINT, LAST_MODIFIED BIGINT, EXTENSION VARCHAR)");
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS SNAPSHOT_DIRECTORY_PARENT ON SNAPSHOT_DIRECTORY(PARENT)");
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS SNAPSHOT_FILE_DIRECTORY ON SNAPSHOT_FILE(DIRECTORY)");
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS SNAPSHOT_FILE_EXTENSION ON SNAPSHOT_FILE(EXTENSION)");
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS SNAPSHOT_FILE_SIZE ON SNAPSHOT_FILE(FILE_SIZE)");
+		}
+		connection.commit();
+	}
+
+	private void loadDirectories(Map<String, Long> modifications, Map<String, List<String>> children) throws SQLException {
+		try (Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery("SELECT PATH, PARENT, LAST_MODIFIED FROM SNAPSHOT_DIRECTORY")) {
+			while (resultSet.next()) {
+				String path = resultSet.getString(1);
+				String parent = resultSet.getString(2);
+
+				modifications.put(path, resultSet.getLong(3));
+
+				if (parent != null) {
+					List<String> siblings = children.get(parent);
+					if (siblings == null) {
+						siblings = new ArrayList<String>();
+						children.put(parent, siblings);
+					}
+					siblings.add(path);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stores the directory and its files, and queues its subdirectories for scanning.
+	 */
+	private int scanDirectory(File directory, Deque<File> directories) throws SQLException {
+		long lastModified = directory.lastModified();
+		long listingTime = System.currentTimeMillis();
+		File[] files = directory.listFiles();
+		int fileCount = 0;
+
+		// a change in the same granule as the listing may leave the mtime as it is, and a failed listing proves nothing
+		if (files == null || lastModified > listingTime - MODIFICATION_GRANULARITY) {
+			lastModified = UNSETTLED_MODIFICATION;
+		}
+
+		if (insertDirectoryStatement == null) {
+			insertDirectoryStatement = connection.prepareStatement("INSERT INTO SNAPSHOT_DIRECTORY(PATH, PARENT, LAST_MODIFIED) VALUES(?, ?, ?)");
+		}
+
+		File parent = directory.getParentFile();
+
+		insertDirectoryStatement.setString(1, directory.getPath());
+		insertDirectoryStatement.setString(2, (parent == null) ? null : parent.getPath());
+		insertDirectoryStatement.setLong(3, lastModified);
+		addBatch(insertDirectoryStatement);
+
+		if (files == null) {
+			return 0;
+		}
+
+		for (File file : files) {
+			if (file.isDirectory() == true) {
+				directories.push(file);
+			} else {
+				insertFile(file);
+				fileCount++;
+			}
+		}
+
+		return fileCount;
+	}
+
+	private void insertFile(File file) throws SQLException {
+		if (insertFileStatement == null) {
+			insertFileStatement = connection.prepareStatement("INSERT INTO SNAPSHOT_FILE(PATH, DIRECTORY, FILE_SIZE, LAST_MODIFIED, EXTENSION) VALUES(?, ?, ?, ?, ?)");
+		}
+
+		insertFileStatement.setString(1, file.getPath());
+		insertFileStatement.setString(2, file.getParent());
+		insertFileStatement.setLong(3, file.length());
+		insertFileStatement.setLong(4, file.lastModified());
+		insertFileStatement.setString(5, Files.getFileExtension(file.getName()));
+		addBatch(insertFileStatement);
+	}
+
+	/**
+	 * @return the batched statements in flush order, with <code>null</code> for those not prepared yet
+	 */
+	private List<PreparedStatement> batchedStatements() {
+		return Arrays.asList(deleteFilesStatement, deleteDirectoryStatement, insertDirectoryStatement, insertFileStatement);
+	}
+
+	private void addBatch(PreparedStatement statement) throws SQLException {
+		statement.addBatch();
+
+		if (++pendingStatements >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Runs the pending deletes before the pending inserts, which is safe because a
+	 * directory is always deleted before it is listed again, never after.
+	 */
+	private void flush() throws SQLException {
+		if (pendingStatements > 0) {
+			for (PreparedStatement statement : batchedStatements()) {
+				if (statement != null) {
+					statement.executeBatch();
+				}
+			}
+			pendingStatements = 0;
+		}
+	}
+
+	/**
+	 * Removes a directory row and the files directly inside it, keeping its subdirectories.
+	 */
+	private void deleteDirectoryEntry(String path) throws SQLException {
+		if (deleteFilesStatement == null) {
+			deleteFilesStatement = connection.prepareStatement("DELETE FROM SNAPSHOT_FILE WHERE DIRECTORY = ?");
+			deleteDirectoryStatement = connection.prepareStatement("DELETE FROM SNAPSHOT_DIRECTORY WHERE PATH = ?");
+		}
+
+		deleteFilesStatement.setString(1, path);
+		addBatch(deleteFilesStatement);
+
+		deleteDirectoryStatement.setString(1, path);
+		addBatch(deleteDirectoryStatement);
+	}
+
+	/**
+	 * Removes a directory together with everything stored below it.
+	 */
+	private void deleteDirectory(String path, Map<String, List<String>> children) throws SQLException {
+		List<String> subdirectories = children.remove(path);
+
+		if (subdirectories != null) {
+			for (String subdirectory : subdirectories) {
+				deleteDirectory(subdirectory, children);
+			}
+		}
+
+		deleteDirectoryEntry(path);
+	}
+
+	private static void appendParameters(StringBuilder sql, int count) {
+		for (int i = 0; i < count; i++) {
+			sql.append((i == 0) ? "?" : ", ?");
+		}
+	}
+
+	private static String escapeLike(String value) {
+		return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+	}
+
+	private List<File> queryFiles(String sql, Object... parameters) {
+		List<File> resultList = new ArrayList<File>();
+
+		try (PreparedStatement statement = connection.prepareStatement(sql)) {
+			for (int i = 0; i < parameters.length; i++) {
+				statement.setObject(i + 1, parameters[i]);
+			}
+
+			try (ResultSet resultSet = statement.executeQuery()) {
+				while (resultSet.next()) {
+					resultList.add(new File(resultSet.getString(1)));
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+
+		return resultList;
+	}
+
+	private void rollback() {
+		try {
+			pendingStatements = 0;
+			for (PreparedStatement statement : batchedStatements()) {
+				if (statement != null) {
+					statement.clearBatch();
+				}
+			}
+			connection.rollback();
+		} catch (SQLException e) {
+			// keep the original failure
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package steady.red.easyj;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+@RunWith(JUnitParamsRunner.class)
+public class CompactPathListTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	@Parameters({"src/test/resources/test-files/folder-one,java,2",
+				 "src/test/resources/test-files/folder-one,txt,1",
+				 "src/test/resources/test-files/non-existent-folder,txt,0"})
+	public void CompactListingMatchesPlainListingTest(String directoryFilePath, String extension, int fileCount) {
+		File rootDirectory = new File(directoryFilePath);
+
+		List<String> expected = EasyJ.getFilePathesListing(rootDirectory, new String[]{extension});
+		Collections.sort(expected);
+
+		CompactPathList filesList = EasyJ.getCompactFilePathesListing(rootDirectory, new String[]{extension});
+
+		assertThat(filesList).hasSize(fileCount);
+		assertThat(new ArrayList<String>(filesList)).isEqualTo(expected);
+	}
+
+	@Test
+	public void FootprintTest() throws IOException {
+		File deepDirectory = temporaryFolder.getRoot();
+		for (int i = 0; i < 15; i++) {
+			deepDirectory = new File(deepDirectory, "shared-prefix-level" + i);
+		}
+
+		for (int i = 0; i < 3000; i++) {
+			File directory = new File(deepDirectory, "package" + (i % 3));
+			directory.mkdirs();
+			new File(directory, "Source" + i + ".java").createNewFile();
+		}
+
+		List<String> plainList = EasyJ.getFilePathesListing(temporaryFolder.getRoot(), new String[]{"java"});
+		CompactPathList compactList = EasyJ.getCompactFilePathesListing(temporaryFolder.getRoot(), new String[]{"java"});
+
+		long plainCharacters = 0;
+		for (String path : plainList) {
+			plainCharacters += path.length();
+		}
+
+		assertThat(compactList).hasSize(3000);
+		assertThat(compactList.getArenaSize()).isLessThan(3000 * 20);
+		// UTF-16 strings take two bytes per character, before any object overhead
+		assertThat(compactList.getEstimatedSize() * 10).isLessThan(plainCharacters * 2);
+	}
+
+	@Test
+	public void SortedAndSearchableTest() {
+		File root = new File("build-root").getAbsoluteFile();
+
+		CompactPathList.Builder builder = new CompactPathList.Builder();
+		builder.add(new File(root, "b/z.java"));
+		builder.add(new File(root, "a.b/y.java"));
+		builder.add(new File(root, "a/x.java"));
+		builder.add(new File(root, "a/w.java"));
+		CompactPathList filesList = builder.build();
+
+		List<String> expected = new ArrayList<String>();
+		expected.add(new File(root, "b/z.java").getPath());
+		expected.add(new File(root, "a.b/y.java").getPath());
+		expected.add(new File(root, "a/x.java").getPath());
+		expected.add(new File(root, "a/w.java").getPath());
+		Collections.sort(expected);
+
+		assertThat(new ArrayList<String>(filesList)).isEqualTo(expected);
+
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(filesList.binarySearch(expected.get(i))).isEqualTo(i);
+		}
+
+		assertThat(filesList.contains(new File(root, "a/v.java").getPath())).isFalse();
+		assertThat(filesList.binarySearch(new File(root, "a/v.java").getPath())).isLessThan(0);
+	}
+
+}
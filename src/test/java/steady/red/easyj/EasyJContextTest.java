@@ -0,0 +1,52 @@
+package steady.red.easyj;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import com.typesafe.config.ConfigException;
+import com.typesafe.config.ConfigFactory;
+
+public class EasyJContextTest {
+
+	@Test
+	public void ReferenceDefaultsTest() {
+		EasyJContext context = EasyJContext.getDefault();
+
+		assertThat(context.getWorkerThreads()).isEqualTo(4);
+		assertThat(context.getBufferSize()).isEqualTo(8192);
+		assertThat(context.getRegexCacheSize()).isEqualTo(256);
+		assertThat(context.getFormatMaxSize()).isEqualTo(-1);
+		assertThat(context.getSnapshotBatchSize()).isEqualTo(1000);
+	}
+
+	@Test
+	public void OverridesFallBackToReferenceTest() {
+		EasyJContext context = new EasyJContext(ConfigFactory.parseString("easyj.io.buffer-size = 65536\neasyj.format.max-size = 10"));
+
+		assertThat(context.getBufferSize()).isEqualTo(65536);
+		assertThat(context.getFormatMaxSize()).isEqualTo(10);
+		assertThat(context.getWorkerThreads()).isEqualTo(4);
+		assertThat(EasyJ.toListString(EasyJ.findRegex("one two three four five", "\\w+", context), context)).isEqualTo("[one, two, ...]");
+	}
+
+	@Test
+	public void SubstitutionsAreResolvedTest() {
+		EasyJContext context = new EasyJContext(ConfigFactory.parseString("cores = 16\neasyj.workers.threads = ${cores}"));
+
+		assertThat(context.getWorkerThreads()).isEqualTo(16);
+	}
+
+	@Test(expected = ConfigException.BadValue.class)
+	public void NonPositiveValueTest() {
+		new EasyJContext(ConfigFactory.parseString("easyj.workers.threads = 0"));
+	}
+
+	@Test
+	public void PatternCacheTest() {
+		EasyJContext context = EasyJContext.getDefault();
+
+		assertThat(context.compilePattern("a+b")).isSameAs(context.compilePattern("a+b"));
+	}
+
+}
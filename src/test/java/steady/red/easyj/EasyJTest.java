@@ -1,8 +1,11 @@
 package steady.red.easyj;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -11,12 +14,17 @@ import java.util.Set;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 @RunWith(JUnitParamsRunner.class)
 public class EasyJTest {
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	@Test
 	public void TestHashSet() {
 		Set<String> aSet = new HashSet<String>();
@@ -39,4 +47,62 @@ public class EasyJTest {
 		assertThat(filesList).hasSize(fileCount);
 	}
 
+	@Test
+	public void CheckDirectoriesTest() {
+		File root = temporaryFolder.getRoot();
+		List<File> directories = new ArrayList<File>();
+
+		for (int i = 0; i < 50; i++) {
+			directories.add(new File(root, "generated/module" + (i % 5)));
+			directories.add(new File(root, "generated/module" + (i % 5) + "/package" + i));
+		}
+
+		EasyJ.checkDirectories(directories, "output");
+
+		for (File directory : directories) {
+			assertThat(directory.isDirectory()).isTrue();
+		}
+	}
+
+	@Test
+	public void CheckDirectoriesReportsConflictsTest() throws IOException {
+		File root = temporaryFolder.getRoot();
+		File conflict = temporaryFolder.newFile("conflict");
+
+		try {
+			EasyJ.checkDirectories(Arrays.asList(new File(conflict, "a"), new File(conflict, "b"), new File(root, "fine")), "output");
+			fail("conflict not reported");
+		} catch (RuntimeException e) {
+			assertThat(e.getMessage()).isEqualTo("Designated output directory is not a directory: \"" + conflict.getAbsolutePath() + "\"");
+		}
+
+		assertThat(new File(root, "fine").isDirectory()).isTrue();
+	}
+
+	@Test
+	public void CheckDirectoriesNormalizesTest() {
+		File root = temporaryFolder.getRoot();
+
+		EasyJ.checkDirectories(Arrays.asList(new File(root, "out/stray/../b"), new File(root, "out/./b/c")), "output");
+
+		assertThat(new File(root, "out/b/c").isDirectory()).isTrue();
+		assertThat(new File(root, "out/stray").exists()).isFalse();
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void CheckDirectoryOnFileTest() throws IOException {
+		EasyJ.checkDirectory(temporaryFolder.newFile("not-a-directory"), "output");
+	}
+
+	@Test
+	public void WriteAppendReadTest() throws IOException {
+		File file = temporaryFolder.newFile("result.txt");
+
+		EasyJ.write(file, "one.java ");
+		EasyJ.append(file, "two.java");
+
+		assertThat(EasyJ.read(file)).isEqualTo("one.java two.java");
+		assertThat(EasyJ.findRegex(EasyJ.read(file), "\\w+\\.java")).containsExactly("one.java", "two.java");
+	}
+
 }
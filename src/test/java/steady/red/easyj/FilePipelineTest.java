@@ -0,0 +1,170 @@
+package steady.red.easyj;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import rx.functions.Action1;
+import rx.functions.Func1;
+
+public class FilePipelineTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void ReadMatchWriteTest() throws IOException {
+		File rootDirectory = temporaryFolder.newFolder("sources");
+		for (int i = 0; i < 200; i++) {
+			File directory = new File(rootDirectory, "package" + (i % 7));
+			directory.mkdirs();
+			EasyJ.write(new File(directory, "Source" + i + ".java"), (i % 3 == 0) ? "class Source" + i + " { // TODO }" : "class Source" + i + " {}");
+			EasyJ.write(new File(directory, "notes" + i + ".txt"), "TODO");
+		}
+
+		final File results = new File(temporaryFolder.getRoot(), "results.txt");
+		final List<String> matchedFiles = new ArrayList<String>();
+
+		List<Throwable> failures = FilePipeline.walk(rootDirectory, new String[]{"java"})
+				.stage(new Func1<File, String[]>() {
+					@Override
+					public String[] call(File file) {
+						return new String[]{file.getName(), EasyJ.read(file)};
+					}
+				})
+				.stage(2, new Func1<String[], String>() {
+					@Override
+					public String call(String[] nameAndText) {
+						return EasyJ.findRegex(nameAndText[1], "TODO").isEmpty() ? null : nameAndText[0];
+					}
+				})
+				.run(new Action1<String>() {
+					@Override
+					public void call(String name) {
+						matchedFiles.add(name);
+						EasyJ.append(results, name + "\n");
+					}
+				});
+
+		assertThat(failures).isEmpty();
+		assertThat(matchedFiles).hasSize(67);
+		assertThat(EasyJ.read(results).split("\n")).hasSize(67);
+	}
+
+	@Test
+	public void MissingRootIsEmptyTest() {
+		final AtomicInteger received = new AtomicInteger();
+
+		List<Throwable> failures = FilePipeline.walk(new File("src/test/resources/test-files/non-existent-folder"), new String[]{"java"})
+				.stage(new Func1<File, String>() {
+					@Override
+					public String call(File file) {
+						return EasyJ.read(file);
+					}
+				})
+				.run(new Action1<String>() {
+					@Override
+					public void call(String text) {
+						received.incrementAndGet();
+					}
+				});
+
+		assertThat(failures).isEmpty();
+		assertThat(received.get()).isEqualTo(0);
+	}
+
+	@Test
+	public void FailuresAreIsolatedTest() {
+		File rootDirectory = new File("src/test/resources/test-files");
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+
+		List<Throwable> failures = FilePipeline.walk(rootDirectory, new String[]{"java", "txt"})
+				.stage(1, new Func1<File, File>() {
+					@Override
+					public File call(File file) {
+						accumulateMax(maxActive, active.incrementAndGet());
+						try {
+							if (file.getName().endsWith(".txt")) {
+								throw new IllegalStateException("unreadable");
+							}
+							return file;
+						} finally {
+							active.decrementAndGet();
+						}
+					}
+				})
+				.run();
+
+		assertThat(failures).hasSize(1);
+		assertThat(failures.get(0).getCause()).isInstanceOf(IllegalStateException.class);
+		assertThat(maxActive.get()).isEqualTo(1);
+	}
+
+	@Test
+	public void WalkNeverRunsAheadOfSlowestStageTest() throws IOException {
+		File rootDirectory = temporaryFolder.newFolder("sources");
+		for (int i = 0; i < 100; i++) {
+			EasyJ.write(new File(rootDirectory, "Source" + i + ".java"), "class Source" + i + " {}");
+		}
+
+		final AtomicInteger outstanding = new AtomicInteger();
+		final AtomicInteger maxOutstanding = new AtomicInteger();
+		final AtomicInteger received = new AtomicInteger();
+
+		List<Throwable> failures = FilePipeline.walk(rootDirectory, new String[]{"java"})
+				.filter(new Func1<File, Boolean>() {
+					@Override
+					public Boolean call(File file) {
+						// counts every file as the walk hands it on
+						accumulateMax(maxOutstanding, outstanding.incrementAndGet());
+						return true;
+					}
+				})
+				.stage(2, new Func1<File, File>() {
+					@Override
+					public File call(File file) {
+						return file;
+					}
+				})
+				.stage(3, new Func1<File, File>() {
+					@Override
+					public File call(File file) {
+						try {
+							Thread.sleep(5);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+						return file;
+					}
+				})
+				.run(new Action1<File>() {
+					@Override
+					public void call(File file) {
+						outstanding.decrementAndGet();
+						received.incrementAndGet();
+					}
+				});
+
+		assertThat(failures).isEmpty();
+		assertThat(received.get()).isEqualTo(100);
+		assertThat(maxOutstanding.get()).isLessThanOrEqualTo(2 + 3);
+	}
+
+	private static void accumulateMax(AtomicInteger max, int value) {
+		for (int current = max.get(); value > current; current = max.get()) {
+			if (max.compareAndSet(current, value)) {
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package steady.red.easyj;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class ListingSnapshotTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private ListingSnapshot snapshot;
+
+	@Before
+	public void openSnapshot() {
+		snapshot = ListingSnapshot.openH2("jdbc:h2:mem:" + getClass().getSimpleName());
+	}
+
+	@After
+	public void closeSnapshot() {
+		snapshot.close();
+	}
+
+	@Test
+	public void SnapshotMatchesListingTest() {
+		File rootDirectory = new File("src/test/resources/test-files");
+
+		snapshot.save(rootDirectory);
+
+		assertThat(snapshot.getFilesListing(new String[]{"java"})).hasSize(2);
+		assertThat(snapshot.getFilesListing(new String[]{"txt"})).hasSize(1);
+		assertThat(snapshot.getFilesListing()).containsOnly(EasyJ.getFilesListing(rootDirectory.getAbsoluteFile(), new String[]{"java", "txt"}).toArray(new File[0]));
+	}
+
+	@Test
+	public void RefreshOnlyRescansChangedDirectoriesTest() throws IOException {
+		File rootDirectory = temporaryFolder.getRoot();
+		File unchanged = temporaryFolder.newFolder("unchanged");
+		File changed = temporaryFolder.newFolder("changed");
+		File removed = temporaryFolder.newFolder("removed");
+		write(new File(unchanged, "a.java"), "a");
+		write(new File(changed, "b.java"), "b");
+		write(new File(removed, "c.java"), "c");
+		settle(rootDirectory, unchanged, changed, removed);
+
+		snapshot.save(rootDirectory);
+		assertThat(snapshot.refresh(rootDirectory)).isEqualTo(0);
+
+		write(new File(changed, "d.txt"), "dddd");
+		new File(removed, "c.java").delete();
+		removed.delete();
+		// directory modification times may be coarse, make sure the change is visible
+		changed.setLastModified(changed.lastModified() - 10000);
+		rootDirectory.setLastModified(rootDirectory.lastModified() - 10000);
+
+		assertThat(snapshot.refresh(rootDirectory)).isEqualTo(2);
+
+		List<File> javaFiles = snapshot.getFilesListing(new String[]{"java"});
+		assertThat(javaFiles).containsOnly(new File(unchanged, "a.java"), new File(changed, "b.java"));
+		assertThat(snapshot.getFilesBySize(4, 4)).containsOnly(new File(changed, "d.txt"));
+	}
+
+	@Test
+	public void RefreshDropsVanishedDirectoryTest() throws IOException {
+		File rootDirectory = temporaryFolder.getRoot();
+		File parent = temporaryFolder.newFolder("parent");
+		File vanished = new File(parent, "vanished");
+		vanished.mkdir();
+		write(new File(vanished, "gone.java"), "gone");
+		settle(rootDirectory, parent, vanished);
+
+		snapshot.save(rootDirectory);
+		long parentModification = parent.lastModified();
+
+		new File(vanished, "gone.java").delete();
+		vanished.delete();
+		// pretend the parent's mtime did not move, as with coarse or reset mtimes
+		parent.setLastModified(parentModification);
+
+		// the vanished directory is dropped, not listed again as an empty directory
+		assertThat(snapshot.refresh(rootDirectory)).isEqualTo(0);
+
+		assertThat(snapshot.getFilesListing()).isEmpty();
+		assertThat(snapshot.refresh(rootDirectory)).isEqualTo(0);
+		assertThat(snapshot.getFilesListing()).isEmpty();
+	}
+
+	@Test
+	public void ListingIsLimitedToRootTest() throws IOException {
+		File firstRoot = temporaryFolder.newFolder("tree_a");
+		File secondRoot = temporaryFolder.newFolder("treeXa");
+		File siblingRoot = temporaryFolder.newFolder("tree_a-sibling");
+		write(new File(firstRoot, "first.java"), "first");
+		write(new File(secondRoot, "second.java"), "second");
+		write(new File(siblingRoot, "sibling.java"), "sibling");
+
+		snapshot.save(firstRoot);
+		snapshot.refresh(secondRoot);
+		snapshot.refresh(siblingRoot);
+
+		assertThat(snapshot.getFilesListing(new String[]{"java"})).hasSize(3);
+		assertThat(EasyJ.getFilesListing(firstRoot, new String[]{"java"}, snapshot)).containsOnly(new File(firstRoot, "first.java"));
+		assertThat(EasyJ.getFilesListing(secondRoot, new String[]{"java"}, snapshot)).containsOnly(new File(secondRoot, "second.java"));
+
+		File fileSystemRoot = firstRoot.getAbsoluteFile().toPath().getRoot().toFile();
+		assertThat(snapshot.getFilesListing(fileSystemRoot, new String[]{"java"})).hasSize(3);
+	}
+
+	@Test
+	public void RecentlyModifiedDirectoryIsListedAgainTest() throws IOException {
+		File rootDirectory = temporaryFolder.getRoot();
+		File directory = temporaryFolder.newFolder("recent");
+		write(new File(directory, "first.java"), "first");
+
+		snapshot.save(rootDirectory);
+		long storedModification = directory.lastModified();
+
+		// a file added within the granularity window, on a file system where the mtime did not move
+		write(new File(directory, "second.java"), "second");
+		directory.setLastModified(storedModification);
+
+		snapshot.refresh(rootDirectory);
+
+		assertThat(snapshot.getFilesListing()).containsOnly(new File(directory, "first.java"), new File(directory, "second.java"));
+	}
+
+	/**
+	 * Moves the modification times out of the granularity window, so that the directories are trusted once saved.
+	 */
+	private static void settle(File... directories) {
+		long settled = System.currentTimeMillis() - 10 * ListingSnapshot.MODIFICATION_GRANULARITY;
+
+		for (File directory : directories) {
+			directory.setLastModified(settled);
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		Files.write(content, file, Charsets.UTF_8);
+	}
+
+}